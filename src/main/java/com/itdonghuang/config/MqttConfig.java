@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.integration.annotation.ServiceActivator;
@@ -40,6 +41,9 @@ public class MqttConfig {
     @Value("${mqtt.password}")
     private String password;
     
+    @Value("${mqtt.inbound.persistent-session:false}")
+    private boolean persistentSession;
+    
     @Autowired
     private MqttTopicConfig topicConfig;
 
@@ -48,14 +52,22 @@ public class MqttConfig {
      */
     @Bean
     public MqttPahoClientFactory mqttClientFactory() {
-        logger.info("初始化MQTT客户端工厂 - Broker: {}", brokerUrl);
+        return createClientFactory(true);
+    }
+
+    /**
+     * 创建MQTT客户端工厂
+     * @param cleanSession 是否清除会话，持久会话下Broker会保留断线期间的消息
+     */
+    private MqttPahoClientFactory createClientFactory(boolean cleanSession) {
+        logger.info("初始化MQTT客户端工厂 - Broker: {}, cleanSession: {}", brokerUrl, cleanSession);
         
         DefaultMqttPahoClientFactory factory = new DefaultMqttPahoClientFactory();
         MqttConnectOptions options = new MqttConnectOptions();
         options.setServerURIs(new String[] { brokerUrl });
         options.setUserName(username);
         options.setPassword(password.toCharArray());
-        options.setCleanSession(true);
+        options.setCleanSession(cleanSession);
         options.setAutomaticReconnect(true);
         options.setConnectionTimeout(30);
         options.setKeepAliveInterval(60);
@@ -84,15 +96,41 @@ public class MqttConfig {
 
     /**
      * 创建MQTT消息生产者
+     * 持久会话模式下使用固定的客户端ID并手动确认，消息写库提交后才确认；
+     * 该模式下只订阅数据主题，查询主题由queryInbound以清除会话方式订阅，
+     * 避免离线期间积压的查询请求在重连后全部重放
      */
     @Bean
     public MessageProducer inbound() {
         logger.info("开始初始化MQTT消息生产者");
         
+        String[] topics = persistentSession
+                ? new String[] { topicConfig.getSub().getCarData(), topicConfig.getSub().getTip() }
+                : new String[] { topicConfig.getSub().getCarData(), topicConfig.getSub().getTip(),
+                        topicConfig.getPub().getCarVid(), topicConfig.getPub().getTip() };
+        MqttPahoClientFactory clientFactory = persistentSession ? createClientFactory(false) : mqttClientFactory();
+        MqttPahoMessageDrivenChannelAdapter adapter =
+                new MqttPahoMessageDrivenChannelAdapter(clientId + "_inbound", clientFactory, topics);
+        
+        adapter.setCompletionTimeout(5000);
+        adapter.setConverter(new DefaultPahoMessageConverter());
+        adapter.setQos(1);
+        adapter.setManualAcks(persistentSession);
+        adapter.setOutputChannel(mqttInputChannel());
+        
+        logger.info("MQTT消息生产者初始化完成 - 订阅主题: {}", String.join(", ", topics));
+        return adapter;
+    }
+
+    /**
+     * 创建MQTT查询消息生产者
+     * 仅在持久会话模式下创建，以清除会话方式订阅查询主题，离线期间的查询请求不会保留
+     */
+    @Bean
+    @ConditionalOnProperty(name = "mqtt.inbound.persistent-session", havingValue = "true")
+    public MessageProducer queryInbound() {
         MqttPahoMessageDrivenChannelAdapter adapter =
-                new MqttPahoMessageDrivenChannelAdapter(clientId + "_inbound", mqttClientFactory(),
-                        topicConfig.getSub().getCarData(),
-                        topicConfig.getSub().getTip(),
+                new MqttPahoMessageDrivenChannelAdapter(clientId + "_query", mqttClientFactory(),
                         topicConfig.getPub().getCarVid(),
                         topicConfig.getPub().getTip());
         
@@ -101,9 +139,7 @@ public class MqttConfig {
         adapter.setQos(1);
         adapter.setOutputChannel(mqttInputChannel());
         
-        logger.info("MQTT消息生产者初始化完成 - 订阅主题: {}, {}, {}, {}", 
-                   topicConfig.getSub().getCarData(),
-                   topicConfig.getSub().getTip(),
+        logger.info("MQTT查询消息生产者初始化完成 - 订阅主题: {}, {}",
                    topicConfig.getPub().getCarVid(),
                    topicConfig.getPub().getTip());
         return adapter;
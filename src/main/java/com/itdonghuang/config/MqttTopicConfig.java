@@ -14,6 +14,7 @@ public class MqttTopicConfig {
     
     private Pub pub = new Pub();
     private Sub sub = new Sub();
+    private Encoded encoded = new Encoded();
     
     /**
      * 发布主题配置
@@ -34,4 +35,15 @@ public class MqttTopicConfig {
         private String tip = "subTip";              // 接收主题 - 接收异常警报消息
         private String historyTip = "subHistoryTip"; // 响应主题 - 发送异常状态的历史数据
     }
+    
+    /**
+     * 编码响应主题配置
+     * 查询中指定layout/encoding时，响应发送到原响应主题加后缀的独立主题，
+     * 如 subAllMsg/columns、subAllMsg/gzip、subAllMsg/columns/gzip，原主题始终为未压缩JSON
+     */
+    @Data
+    public static class Encoded {
+        private String columnsSuffix = "/columns";  // 按列组织的响应主题后缀
+        private String gzipSuffix = "/gzip";        // gzip压缩的响应主题后缀
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,140 @@
+package com.itdonghuang.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itdonghuang.entity.BatteryLiveState;
+import com.itdonghuang.service.BatteryStateService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 电池实时状态接口
+ * 直接读取内存中的最新状态表，不访问数据库
+ * 支持ETag/If-None-Match，状态未变化时返回304
+ * ETag为弱校验：版本号只随VID、T、C、状态变化，lastSeen刷新不改变ETag，
+ * 因此304响应对应的缓存内容中lastSeen可能比实际值旧
+ * ETag带有启动标识，重启后版本号从0开始也不会与重启前的ETag相同
+ * 启动时从数据库加载最新状态失败时，快照响应带有 X-State-Seeded: false，表示结果可能不完整
+ */
+@RestController
+@RequestMapping("/api/batteries/state")
+public class BatteryStateController {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatteryStateController.class);
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // 启动标识，区分不同进程生成的ETag
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+
+    @Autowired
+    private BatteryStateService batteryStateService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 查询所有电池的最新状态，可按条件过滤
+     * 例如 /api/batteries/state?minT=60 查询温度高于60℃的电池
+     * @param vid 车辆ID（可选）
+     * @param status 最近异常状态码（可选）
+     * @param minT 最低温度（可选）
+     * @param maxT 最高温度（可选）
+     * @param minC 最低电量（可选）
+     * @param maxC 最高电量（可选）
+     * @param request 当前请求，用于校验If-None-Match
+     * @return 以流方式输出的状态列表，未变化时返回null（已写入304）
+     */
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> getStates(
+            @RequestParam(required = false) String vid,
+            @RequestParam(required = false) Integer status,
+            @RequestParam(required = false) Double minT,
+            @RequestParam(required = false) Double maxT,
+            @RequestParam(required = false) Double minC,
+            @RequestParam(required = false) Double maxC,
+            WebRequest request) {
+        // 先读版本号再读内容，内容只会比版本号新，不会返回过期的304
+        String etag = "W/\"" + bootId + "-v" + batteryStateService.getVersion() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        Predicate<BatteryLiveState> filter = state ->
+            (vid == null || vid.equals(state.getVID()))
+                && (status == null || status.equals(state.getStatus()))
+                && (minT == null || (state.getT() != null && state.getT() > minT))
+                && (maxT == null || (state.getT() != null && state.getT() < maxT))
+                && (minC == null || (state.getC() != null && state.getC() > minC))
+                && (maxC == null || (state.getC() != null && state.getC() < maxC));
+        List<BatteryLiveState> states = batteryStateService.findStates(filter);
+        logger.info("查询电池实时状态 - 返回 {} 条, ETag: {}", states.size(), etag);
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+                generator.writeStartArray();
+                for (BatteryLiveState state : states) {
+                    generator.writeObject(toView(state));
+                }
+                generator.writeEndArray();
+            }
+        };
+        // ETag响应头已由checkNotModified写入
+        return ResponseEntity.ok()
+            .header("X-State-Seeded", String.valueOf(batteryStateService.isSeeded()))
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(body);
+    }
+
+    /**
+     * 查询单个电池的最新状态
+     * @param pid 电池ID
+     * @param request 当前请求，用于校验If-None-Match
+     * @return 电池最新状态，未变化时返回null（已写入304）
+     */
+    @GetMapping("/{pid}")
+    public ResponseEntity<Map<String, Object>> getState(
+            @PathVariable String pid,
+            WebRequest request) {
+        BatteryLiveState state = batteryStateService.getState(pid);
+        if (state == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String etag = "W/\"" + bootId + "-" + state.getVersion() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok(toView(state));
+    }
+
+    /**
+     * 转换为与MQTT消息一致的字段格式
+     */
+    private Map<String, Object> toView(BatteryLiveState state) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("PID", state.getPID());
+        map.put("VID", state.getVID());
+        map.put("T", state.getT());
+        map.put("C", state.getC());
+        map.put("status", state.getStatus());
+        map.put("statusTime", state.getStatusTime() != null ? state.getStatusTime().format(TIME_FORMATTER) : null);
+        map.put("lastSeen", state.getLastSeen() != null ? state.getLastSeen().format(TIME_FORMATTER) : null);
+        return map;
+    }
+}
@@ -0,0 +1,20 @@
+package com.itdonghuang.entity;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 电池实时状态实体类
+ * 内存中每个PID只保留一份最新状态，更新时整体替换，不做原地修改
+ */
+@Data
+public class BatteryLiveState {
+    private String PID;
+    private String VID;
+    private Double T;                  // 最新温度
+    private Double C;                  // 最新电量
+    private Integer status;            // 最近一次异常状态码
+    private LocalDateTime statusTime;  // 最近一次异常时间
+    private LocalDateTime lastSeen;    // 本次启动后最近一次收到该电池消息的时间，仅从数据库加载时为null
+    private long version;              // 最近一次状态变化的序号，lastSeen刷新不改变
+}
@@ -33,4 +33,10 @@ public interface BatteryDataMapper {
      * @return 是否存在重复数据
      */
     boolean checkDuplicate(@Param("pid") String pid, @Param("T") Double T, @Param("C") Double C);
+    
+    /**
+     * 查询每个电池的最新一条数据
+     * @return 每个PID一条的最新数据列表
+     */
+    List<BatteryData> findLatest();
 } 
\ No newline at end of file
@@ -22,4 +22,7 @@ public interface BatteryStatusRecordMapper {
 
     // 检查异常状态数据是否重复
     boolean checkDuplicate(@Param("PID") String PID, @Param("status") Integer status, @Param("time") LocalDateTime time);
+
+    // 查询每个电池的最新一条状态记录
+    List<BatteryStatusRecord> findLatest();
 } 
\ No newline at end of file
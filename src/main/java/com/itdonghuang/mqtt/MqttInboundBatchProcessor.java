@@ -0,0 +1,219 @@
+package com.itdonghuang.mqtt;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.integration.StaticMessageHeaderAccessor;
+import org.springframework.integration.acks.SimpleAcknowledgment;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * MQTT入站消息批处理器
+ * 持久会话模式下使用：消息按批在同一个事务中写库，事务提交后按接收顺序确认(ack)消息
+ * 数据库不可用等可恢复的错误会退避重试直到提交成功，期间一直占用窗口，不会丢失；
+ * 违反约束、SQL错误等不可能通过重试成功的消息记录后确认丢弃，避免阻塞后续消息
+ * 已接收未确认的消息数量受max-in-flight限制，窗口满时阻塞Paho回调线程形成背压
+ */
+@Component
+public class MqttInboundBatchProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqttInboundBatchProcessor.class);
+
+    // 等待窗口时的日志间隔，超过该时间仍未获得窗口则记录警告后继续等待
+    private static final long WINDOW_WAIT_SECONDS = 10;
+
+    // 写库失败后的重试间隔，每次翻倍直到上限
+    private static final long RETRY_INITIAL_MILLIS = 1000;
+    private static final long RETRY_MAX_MILLIS = 30000;
+
+    // 无法判断是否可恢复的错误最多尝试的次数
+    private static final int MAX_UNKNOWN_ATTEMPTS = 5;
+
+    @Value("${mqtt.inbound.persistent-session:false}")
+    private boolean enabled;
+
+    @Value("${mqtt.inbound.max-in-flight:16}")
+    private int maxInFlight;
+
+    @Value("${mqtt.inbound.batch-size:16}")
+    private int batchSize;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final BlockingQueue<PendingMessage> queue = new LinkedBlockingQueue<>();
+
+    private Semaphore window;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Thread worker;
+
+    private volatile boolean running;
+
+    /**
+     * 待提交的消息及其处理逻辑
+     */
+    private record PendingMessage(Message<?> message, Consumer<Message<?>> action) {
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Assert.isTrue(maxInFlight >= 1, "mqtt.inbound.max-in-flight必须大于0");
+        Assert.isTrue(batchSize >= 1, "mqtt.inbound.batch-size必须大于0");
+        window = new Semaphore(maxInFlight);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        running = true;
+        worker = new Thread(this::run, "mqtt-inbound-batch");
+        worker.setDaemon(true);
+        worker.start();
+        logger.info("MQTT入站批处理器启动 - max-in-flight: {}, batch-size: {}", maxInFlight, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            // 队列中剩余的消息未确认，会话恢复时由Broker重发
+            logger.info("MQTT入站批处理器停止 - 未提交消息: {}", queue.size());
+        }
+    }
+
+    /**
+     * 提交消息，窗口已满时阻塞直到有消息确认
+     * 阻塞发生在Paho回调线程上，数据库长时间不可用且超过keepalive（60秒）时，
+     * PINGRESP可能得不到及时处理导致连接断开，未确认的消息会在重连后由Broker重发
+     * @param message 带有确认回调的MQTT消息
+     * @param action 消息处理逻辑，数据库异常需要抛出以回滚事务
+     * @throws InterruptedException 等待窗口时被中断
+     */
+    public void submit(Message<?> message, Consumer<Message<?>> action) throws InterruptedException {
+        while (!window.tryAcquire(WINDOW_WAIT_SECONDS, TimeUnit.SECONDS)) {
+            logger.warn("确认窗口已满，等待写库提交 - max-in-flight: {}, 排队消息: {}", maxInFlight, queue.size());
+        }
+        queue.add(new PendingMessage(message, action));
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                List<PendingMessage> batch = new ArrayList<>(batchSize);
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                processBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 整批在一个事务中处理，失败时回滚并按顺序逐条处理
+     */
+    private void processBatch(List<PendingMessage> batch) throws InterruptedException {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                batch.forEach(pending -> pending.action().accept(pending.message())));
+            batch.forEach(this::acknowledge);
+        } catch (Exception e) {
+            logger.error("批量提交失败，逐条重试 - 数量: {}, 错误: {}", batch.size(), e.getMessage(), e);
+            for (PendingMessage pending : batch) {
+                processWithRetry(pending);
+            }
+        }
+    }
+
+    /**
+     * 单条消息在独立事务中处理，再按顺序确认
+     * 可恢复的错误退避重试直到提交成功；不可恢复的错误记录后确认丢弃；
+     * 无法判断的错误最多尝试MAX_UNKNOWN_ATTEMPTS次
+     */
+    private void processWithRetry(PendingMessage pending) throws InterruptedException {
+        long delay = RETRY_INITIAL_MILLIS;
+        int attempts = 0;
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                    pending.action().accept(pending.message()));
+                break;
+            } catch (Exception e) {
+                attempts++;
+                boolean retryable = isRetryable(e);
+                if (!retryable && (e instanceof NonTransientDataAccessException || attempts >= MAX_UNKNOWN_ATTEMPTS)) {
+                    logger.error("消息无法提交，确认后丢弃 - 尝试次数: {}, 内容: {}, 错误: {}",
+                        attempts, pending.message().getPayload(), e.getMessage(), e);
+                    break;
+                }
+                logger.error("消息提交失败，{} ms后重试 - 尝试次数: {}, 内容: {}, 错误: {}",
+                    delay, attempts, pending.message().getPayload(), e.getMessage());
+                // 停止时sleep被中断直接退出，未确认的消息在会话恢复时由Broker重发
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, RETRY_MAX_MILLIS);
+            }
+        }
+        acknowledge(pending);
+    }
+
+    /**
+     * 是否为可恢复的错误（数据库连接失败、超时、死锁等），沿异常链判断
+     * MyBatis会把连接失败包装为MyBatisSystemException，因此不能只看最外层异常
+     */
+    private static boolean isRetryable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof TransientDataAccessException
+                    || t instanceof RecoverableDataAccessException
+                    || t instanceof DataAccessResourceFailureException
+                    || t instanceof CannotCreateTransactionException
+                    || t instanceof SQLTransientException
+                    || t instanceof SQLRecoverableException
+                    || t instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 事务提交后确认消息并释放窗口
+     */
+    private void acknowledge(PendingMessage pending) {
+        try {
+            SimpleAcknowledgment ack = StaticMessageHeaderAccessor.getAcknowledgment(pending.message());
+            if (ack != null) {
+                ack.acknowledge();
+            }
+        } catch (Exception e) {
+            // 连接断开时无法确认，Broker重发的数据由去重逻辑过滤
+            logger.warn("消息确认失败 - 错误: {}", e.getMessage());
+        } finally {
+            window.release();
+        }
+    }
+}
@@ -8,6 +8,8 @@ import com.itdonghuang.service.BatteryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.integration.StaticMessageHeaderAccessor;
 import org.springframework.integration.mqtt.support.MqttHeaders;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHandler;
@@ -40,8 +42,16 @@ public class MqttMessageHandler implements MessageHandler {
     @Autowired
     private org.springframework.messaging.MessageChannel mqttOutboundChannel;
 
+    @Autowired
+    private MqttInboundBatchProcessor batchProcessor;
+
+    @Autowired
+    private MqttPayloadEncoder payloadEncoder;
+
     /**
      * 处理接收到的MQTT消息
+     * 持久会话模式下数据主题的消息带有确认回调，交给批处理器在事务提交后确认；
+     * 查询主题由清除会话的适配器订阅，不带确认回调，直接处理
      * @param message MQTT消息
      */
     @Override
@@ -51,23 +61,59 @@ public class MqttMessageHandler implements MessageHandler {
         
         logger.info("收到MQTT消息 - 主题: {}, 内容: {}", topic, payload);
         
-        try {
-            if (topic.equals(topicConfig.getSub().getCarData())) {
-                handleCarData(payload);
-            } else if (topic.equals(topicConfig.getSub().getTip())) {
-                handleStatusTip(payload);
-            } else if (topic.equals(topicConfig.getPub().getCarVid())) {
-                handleCarVIDQuery(payload);
-            } else if (topic.equals(topicConfig.getPub().getTip())) {
-                handleTipQuery(payload);
-            } else {
-                logger.warn("未知的MQTT主题: {}", topic);
+        if (StaticMessageHeaderAccessor.getAcknowledgment(message) != null) {
+            try {
+                batchProcessor.submit(message, this::handleInBatch);
+            } catch (InterruptedException e) {
+                // 未确认的消息会在会话恢复时重发
+                Thread.currentThread().interrupt();
+                logger.warn("等待确认窗口时被中断 - 主题: {}", topic);
             }
+            return;
+        }
+        
+        try {
+            dispatch(topic, payload);
+        } catch (Exception e) {
+            logger.error("处理MQTT消息时发生错误 - 主题: {}, 错误: {}", topic, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 在批处理事务中处理消息
+     * 数据库异常继续抛出以回滚事务，其他错误（如格式错误）记录后确认丢弃
+     * @param message MQTT消息
+     */
+    private void handleInBatch(Message<?> message) {
+        String topic = message.getHeaders().get(MqttHeaders.RECEIVED_TOPIC, String.class);
+        try {
+            dispatch(topic, message.getPayload().toString());
+        } catch (DataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("处理MQTT消息时发生错误 - 主题: {}, 错误: {}", topic, e.getMessage(), e);
         }
     }
 
+    /**
+     * 按主题分发消息
+     * @param topic 主题
+     * @param payload 消息内容
+     */
+    private void dispatch(String topic, String payload) throws Exception {
+        if (topic.equals(topicConfig.getSub().getCarData())) {
+            handleCarData(payload);
+        } else if (topic.equals(topicConfig.getSub().getTip())) {
+            handleStatusTip(payload);
+        } else if (topic.equals(topicConfig.getPub().getCarVid())) {
+            handleCarVIDQuery(payload);
+        } else if (topic.equals(topicConfig.getPub().getTip())) {
+            handleTipQuery(payload);
+        } else {
+            logger.warn("未知的MQTT主题: {}", topic);
+        }
+    }
+
     /**
      * 处理车辆数据
      * @param payload 消息内容
@@ -90,6 +136,8 @@ public class MqttMessageHandler implements MessageHandler {
             batteryService.handleBatteryData(vid, pid, temperature, charge);
             
             logger.info("处理车辆数据成功 - VID: {}, PID: {}, T: {}, C: {}", vid, pid, temperature, charge);
+        } catch (DataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("处理车辆数据时发生错误: {}", e.getMessage(), e);
         }
@@ -124,6 +172,8 @@ public class MqttMessageHandler implements MessageHandler {
             
             // 处理电池状态
             batteryService.handleBatteryStatus(pid, status, time);
+        } catch (DataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("处理电池状态异常时发生错误: {}", e.getMessage(), e);
         }
@@ -150,16 +200,9 @@ public class MqttMessageHandler implements MessageHandler {
             ))
             .toList();
         
-        // 发送响应
-        String responseJson = objectMapper.writeValueAsString(responseData);
-        logger.info("发送车辆历史数据 - 数据: {}", responseJson);
-        
         // 发送到subAllMsg主题
-        Message<?> message = MessageBuilder
-            .withPayload(responseJson)
-            .setHeader(MqttHeaders.TOPIC, topicConfig.getSub().getAllMsg())
-            .build();
-        mqttOutboundChannel.send(message);
+        logger.info("发送车辆历史数据 - 条数: {}", responseData.size());
+        publishHistory(topicConfig.getSub().getAllMsg(), responseData, data);
     }
 
     /**
@@ -175,15 +218,51 @@ public class MqttMessageHandler implements MessageHandler {
         // 查询所有异常历史数据
         List<Map<String, Object>> history = batteryService.getAllBatteryStatusHistory();
         
-        // 发送响应
-        String responseJson = objectMapper.writeValueAsString(history);
-        logger.info("发送异常历史数据 - 数据: {}", responseJson);
-        
         // 发送到subHistoryTip主题
+        logger.info("发送异常历史数据 - 条数: {}", history.size());
+        publishHistory(topicConfig.getSub().getHistoryTip(), history, data);
+    }
+
+    /**
+     * 发送历史数据响应
+     * 查询中可选字段：layout=columns 按列组织数据，encoding=gzip 压缩后以二进制发送
+     * 指定了这些字段的响应发送到带后缀的独立主题，原主题的订阅者始终收到未压缩的行格式JSON
+     * @param topic 响应主题
+     * @param rows 历史数据
+     * @param query 查询请求内容
+     */
+    private void publishHistory(String topic, List<? extends Map<String, ?>> rows, Map<String, Object> query) throws Exception {
+        Object layout = query.get("layout");
+        Object encoding = query.get("encoding");
+        if (layout != null && !MqttPayloadEncoder.LAYOUT_COLUMNS.equals(layout)) {
+            logger.warn("不支持的数据格式: {}，按行格式发送", layout);
+        }
+        if (encoding != null && !MqttPayloadEncoder.ENCODING_GZIP.equals(encoding)) {
+            logger.warn("不支持的编码方式: {}，按未压缩JSON发送", encoding);
+        }
+        
+        Object body = rows;
+        String responseTopic = topic;
+        if (MqttPayloadEncoder.LAYOUT_COLUMNS.equals(layout)) {
+            body = payloadEncoder.toColumns(rows);
+            responseTopic += topicConfig.getEncoded().getColumnsSuffix();
+        }
+        
+        Object payload;
+        if (MqttPayloadEncoder.ENCODING_GZIP.equals(encoding)) {
+            // 直接序列化为字节，省去中间的String
+            payload = payloadEncoder.gzip(objectMapper.writeValueAsBytes(body));
+            responseTopic += topicConfig.getEncoded().getGzipSuffix();
+        } else {
+            String responseJson = objectMapper.writeValueAsString(body);
+            logger.info("发送响应 - 主题: {}, 数据: {}", responseTopic, responseJson);
+            payload = responseJson;
+        }
+        
         Message<?> message = MessageBuilder
-            .withPayload(responseJson)
-            .setHeader(MqttHeaders.TOPIC, topicConfig.getSub().getHistoryTip())
+            .withPayload(payload)
+            .setHeader(MqttHeaders.TOPIC, responseTopic)
             .build();
         mqttOutboundChannel.send(message);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,110 @@
+package com.itdonghuang.mqtt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * MQTT响应负载编码器
+ * 支持按列组织的JSON结构和gzip压缩，用于历史数据这类字段高度重复的大响应
+ * 每个线程复用同一个Deflater和缓冲区，不在每次响应时重新分配
+ */
+@Component
+public class MqttPayloadEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqttPayloadEncoder.class);
+
+    public static final String ENCODING_GZIP = "gzip";
+
+    public static final String LAYOUT_COLUMNS = "columns";
+
+    // gzip文件头：无文件名、无修改时间，OS字段为unknown
+    private static final byte[] GZIP_HEADER = {
+        0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+
+    // 每个线程保留的输出缓冲区上限，超过后用完即替换，避免偶发的大响应长期占用内存
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+
+    private final ThreadLocal<GzipBuffers> buffers = ThreadLocal.withInitial(GzipBuffers::new);
+
+    /**
+     * 每个线程复用的压缩状态
+     */
+    private static class GzipBuffers {
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final CRC32 crc = new CRC32();
+        private final byte[] chunk = new byte[8192];
+        private ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+    }
+
+    /**
+     * 将行列表转换为按列组织的结构，例如 [{"T":1,"C":2},{"T":3,"C":4}] 转换为 {"T":[1,3],"C":[2,4]}
+     * 每行的键只出现一次，压缩前体积就明显减小
+     * @param rows 行列表，每行的键相同
+     * @return 列名到列数据的映射
+     */
+    public Map<String, List<Object>> toColumns(List<? extends Map<String, ?>> rows) {
+        Map<String, List<Object>> columns = new LinkedHashMap<>();
+        if (rows.isEmpty()) {
+            return columns;
+        }
+        for (String key : rows.get(0).keySet()) {
+            columns.put(key, new ArrayList<>(rows.size()));
+        }
+        for (Map<String, ?> row : rows) {
+            columns.forEach((key, values) -> values.add(row.get(key)));
+        }
+        return columns;
+    }
+
+    /**
+     * gzip压缩，并记录压缩前后大小和耗时
+     * @param data 原始数据
+     * @return gzip格式的数据
+     */
+    public byte[] gzip(byte[] data) {
+        long start = System.nanoTime();
+        GzipBuffers buf = buffers.get();
+        Deflater deflater = buf.deflater;
+        ByteArrayOutputStream out = buf.out;
+        deflater.reset();
+        buf.crc.reset();
+        out.reset();
+
+        out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+        deflater.setInput(data);
+        deflater.finish();
+        while (!deflater.finished()) {
+            int len = deflater.deflate(buf.chunk);
+            out.write(buf.chunk, 0, len);
+        }
+        buf.crc.update(data);
+        writeIntLE(out, (int) buf.crc.getValue());
+        writeIntLE(out, data.length);
+        byte[] result = out.toByteArray();
+        if (out.size() > MAX_RETAINED_BUFFER) {
+            buf.out = new ByteArrayOutputStream(8192);
+        }
+
+        long micros = (System.nanoTime() - start) / 1000;
+        logger.info("gzip压缩响应 - 原始: {} 字节, 压缩后: {} 字节, 压缩率: {}%, 耗时: {} μs",
+            data.length, result.length,
+            String.format("%.2f", data.length == 0 ? 100.0 : result.length * 100.0 / data.length), micros);
+        return result;
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
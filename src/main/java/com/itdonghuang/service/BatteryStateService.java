@@ -0,0 +1,57 @@
+package com.itdonghuang.service;
+
+import com.itdonghuang.entity.BatteryLiveState;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 电池实时状态服务接口
+ * 维护每个PID的最新状态，供REST接口查询，避免扫描battery_data表
+ */
+public interface BatteryStateService {
+
+    /**
+     * 更新电池数据
+     * @param vid 车辆ID
+     * @param pid 电池ID
+     * @param T 电池温度
+     * @param C 电池电量
+     */
+    void updateData(String vid, String pid, Double T, Double C);
+
+    /**
+     * 更新电池异常状态
+     * @param pid 电池ID
+     * @param status 状态码
+     * @param time 异常时间
+     */
+    void updateStatus(String pid, Integer status, LocalDateTime time);
+
+    /**
+     * 获取单个电池的最新状态
+     * @param pid 电池ID
+     * @return 最新状态，不存在时返回null
+     */
+    BatteryLiveState getState(String pid);
+
+    /**
+     * 按条件查询电池最新状态
+     * @param filter 过滤条件
+     * @return 按PID排序的状态列表
+     */
+    List<BatteryLiveState> findStates(Predicate<BatteryLiveState> filter);
+
+    /**
+     * 获取当前全局版本号，任意电池状态变化时递增
+     * @return 全局版本号
+     */
+    long getVersion();
+
+    /**
+     * 启动时是否已从数据库加载各电池的最新状态
+     * 未加载时查询结果只包含启动后收到过消息的电池
+     * @return 是否已加载
+     */
+    boolean isSeeded();
+}
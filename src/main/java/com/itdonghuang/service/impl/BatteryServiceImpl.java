@@ -5,10 +5,13 @@ import com.itdonghuang.entity.BatteryStatusRecord;
 import com.itdonghuang.mapper.BatteryDataMapper;
 import com.itdonghuang.mapper.BatteryStatusRecordMapper;
 import com.itdonghuang.service.BatteryService;
+import com.itdonghuang.service.BatteryStateService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import java.time.LocalTime;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -32,6 +35,9 @@ public class BatteryServiceImpl implements BatteryService {
     @Autowired
     private BatteryStatusRecordMapper statusRecordMapper;
 
+    @Autowired
+    private BatteryStateService batteryStateService;
+
     /**
      * 处理电池数据
      * @param vid 车辆ID
@@ -58,6 +64,9 @@ public class BatteryServiceImpl implements BatteryService {
         } else {
             logger.info("数据未变化，跳过保存 - VID: {}, PID: {}, T: {}, C: {}", vid, pid, T, C);
         }
+
+        // 更新内存中的实时状态
+        runAfterCommit(() -> batteryStateService.updateData(vid, pid, T, C));
     }
 
     /**
@@ -89,6 +98,9 @@ public class BatteryServiceImpl implements BatteryService {
         } else {
             logger.info("数据未变化，跳过保存 - PID: {}, 状态: {}, 时间: {}", pid, status, time);
         }
+
+        // 更新内存中的实时状态
+        runAfterCommit(() -> batteryStateService.updateStatus(pid, status, dateTime));
     }
 
     /**
@@ -184,4 +196,22 @@ public class BatteryServiceImpl implements BatteryService {
             })
             .collect(Collectors.toList());
     }
+
+    /**
+     * 在事务提交后执行，没有事务时立即执行
+     * 批处理事务回滚时不会修改内存状态，逐条重放也只会生效一次
+     * @param action 要执行的操作
+     */
+    private void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,178 @@
+package com.itdonghuang.service.impl;
+
+import com.itdonghuang.entity.BatteryData;
+import com.itdonghuang.entity.BatteryLiveState;
+import com.itdonghuang.entity.BatteryStatusRecord;
+import com.itdonghuang.mapper.BatteryDataMapper;
+import com.itdonghuang.mapper.BatteryStatusRecordMapper;
+import com.itdonghuang.service.BatteryStateService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 电池实时状态服务实现类
+ * 使用ConcurrentHashMap保存每个PID的最新状态
+ * 只有VID、T、C、状态发生变化时才递增版本号；重复数据只刷新lastSeen，不影响ETag
+ * 启动完成后从数据库加载每个PID的最新数据和状态，避免重启后查询结果不完整
+ */
+@Service
+public class BatteryStateServiceImpl implements BatteryStateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatteryStateServiceImpl.class);
+
+    @Autowired
+    private BatteryDataMapper batteryDataMapper;
+
+    @Autowired
+    private BatteryStatusRecordMapper statusRecordMapper;
+
+    private final Map<String, BatteryLiveState> states = new ConcurrentHashMap<>();
+
+    // 全局版本号，状态变化写入完成后递增，作为快照和过滤查询的ETag
+    private final AtomicLong version = new AtomicLong();
+
+    // 单条状态的序号，状态变化时分配，作为单个PID查询的ETag
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile boolean seeded;
+
+    /**
+     * 启动完成后从数据库加载每个PID的最新数据和状态
+     * 此时MQTT消息可能已经到达，只填充内存中还没有的字段，不覆盖更新的实时数据
+     * 加载失败时只记录日志，查询接口通过isSeeded提示数据不完整
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        List<BatteryData> latestData;
+        List<BatteryStatusRecord> latestStatus;
+        try {
+            latestData = batteryDataMapper.findLatest();
+            latestStatus = statusRecordMapper.findLatest();
+        } catch (Exception e) {
+            logger.error("加载电池最新状态失败，实时状态只包含启动后收到的消息 - 错误: {}", e.getMessage(), e);
+            return;
+        }
+
+        for (BatteryData data : latestData) {
+            states.compute(data.getPID(), (key, old) -> {
+                if (old != null && old.getVID() != null) {
+                    return old;
+                }
+                BatteryLiveState state = copyOf(key, old, true);
+                // 从数据库加载的数据不算本次启动后收到的消息
+                state.setLastSeen(old != null ? old.getLastSeen() : null);
+                state.setVID(data.getVID());
+                state.setT(data.getT());
+                state.setC(data.getC());
+                return state;
+            });
+        }
+        for (BatteryStatusRecord record : latestStatus) {
+            states.compute(record.getPID(), (key, old) -> {
+                if (old != null && old.getStatus() != null) {
+                    return old;
+                }
+                BatteryLiveState state = copyOf(key, old, true);
+                // 从数据库加载的状态不算本次启动后收到的消息
+                state.setLastSeen(old != null ? old.getLastSeen() : null);
+                state.setStatus(record.getStatus());
+                state.setStatusTime(record.getTime());
+                return state;
+            });
+        }
+        seeded = true;
+        version.incrementAndGet();
+        logger.info("加载电池最新状态完成 - 数据: {} 条, 状态: {} 条", latestData.size(), latestStatus.size());
+    }
+
+    @Override
+    public void updateData(String vid, String pid, Double T, Double C) {
+        AtomicBoolean changed = new AtomicBoolean();
+        states.compute(pid, (key, old) -> {
+            changed.set(old == null
+                || !Objects.equals(old.getVID(), vid)
+                || !Objects.equals(old.getT(), T)
+                || !Objects.equals(old.getC(), C));
+            BatteryLiveState state = copyOf(key, old, changed.get());
+            state.setVID(vid);
+            state.setT(T);
+            state.setC(C);
+            return state;
+        });
+        // 先写入状态再递增版本号，保证读到的版本号不会比内容更新
+        if (changed.get()) {
+            version.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void updateStatus(String pid, Integer status, LocalDateTime time) {
+        AtomicBoolean changed = new AtomicBoolean();
+        states.compute(pid, (key, old) -> {
+            changed.set(old == null
+                || !Objects.equals(old.getStatus(), status)
+                || !Objects.equals(old.getStatusTime(), time));
+            BatteryLiveState state = copyOf(key, old, changed.get());
+            state.setStatus(status);
+            state.setStatusTime(time);
+            return state;
+        });
+        if (changed.get()) {
+            version.incrementAndGet();
+        }
+    }
+
+    @Override
+    public BatteryLiveState getState(String pid) {
+        return states.get(pid);
+    }
+
+    @Override
+    public List<BatteryLiveState> findStates(Predicate<BatteryLiveState> filter) {
+        return states.values().stream()
+            .filter(filter)
+            .sorted(Comparator.comparing(BatteryLiveState::getPID))
+            .toList();
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * 复制旧状态并刷新最近时间，状态变化时分配新序号，已发布的对象不会再被修改
+     */
+    private BatteryLiveState copyOf(String pid, BatteryLiveState old, boolean changed) {
+        BatteryLiveState state = new BatteryLiveState();
+        state.setPID(pid);
+        if (old != null) {
+            state.setVID(old.getVID());
+            state.setT(old.getT());
+            state.setC(old.getC());
+            state.setStatus(old.getStatus());
+            state.setStatusTime(old.getStatusTime());
+        }
+        state.setLastSeen(LocalDateTime.now());
+        state.setVersion(changed ? sequence.incrementAndGet() : old.getVersion());
+        return state;
+    }
+}
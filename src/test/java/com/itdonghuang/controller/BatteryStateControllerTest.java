@@ -0,0 +1,100 @@
+package com.itdonghuang.controller;
+
+import com.itdonghuang.mapper.BatteryDataMapper;
+import com.itdonghuang.mapper.BatteryStatusRecordMapper;
+import com.itdonghuang.service.BatteryStateService;
+import com.itdonghuang.service.impl.BatteryStateServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(BatteryStateController.class)
+@Import(BatteryStateServiceImpl.class)
+class BatteryStateControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BatteryStateService batteryStateService;
+
+    @MockitoBean
+    private BatteryDataMapper batteryDataMapper;
+
+    @MockitoBean
+    private BatteryStatusRecordMapper statusRecordMapper;
+
+    @BeforeEach
+    void setUp() {
+        batteryStateService.updateData("V1", "P1", 65.0, 80.0);
+        batteryStateService.updateData("V2", "P2", 30.0, 40.0);
+        batteryStateService.updateData("V1", "P3", 70.0, 20.0);
+    }
+
+    @Test
+    void snapshotReturns304WhenUnchanged() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/batteries/state"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        String etag = result.getResponse().getHeader("ETag");
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-State-Seeded", "true"))
+            .andExpect(jsonPath("$.length()").value(3));
+
+        mockMvc.perform(get("/api/batteries/state").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+
+        // 重复数据不改变ETag
+        batteryStateService.updateData("V1", "P1", 65.0, 80.0);
+        mockMvc.perform(get("/api/batteries/state").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+
+        batteryStateService.updateData("V1", "P1", 66.0, 80.0);
+        mockMvc.perform(get("/api/batteries/state").header("If-None-Match", etag))
+            .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void snapshotFilters() throws Exception {
+        MvcResult hot = mockMvc.perform(get("/api/batteries/state").param("minT", "60"))
+            .andReturn();
+        mockMvc.perform(asyncDispatch(hot))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].PID").value("P1"))
+            .andExpect(jsonPath("$[1].PID").value("P3"));
+
+        MvcResult byVid = mockMvc.perform(get("/api/batteries/state").param("vid", "V2"))
+            .andReturn();
+        mockMvc.perform(asyncDispatch(byVid))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].PID").value("P2"))
+            .andExpect(jsonPath("$[0].T").value(30.0));
+    }
+
+    @Test
+    void singleStateSupportsEtagAndNotFound() throws Exception {
+        String etag = mockMvc.perform(get("/api/batteries/state/P2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.VID").value("V2"))
+            .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/batteries/state/P2").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+
+        mockMvc.perform(get("/api/batteries/state/unknown"))
+            .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,218 @@
+package com.itdonghuang.mqtt;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.acks.SimpleAcknowledgment;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MqttInboundBatchProcessorTest {
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private final CountDownLatch gateStarted = new CountDownLatch(1);
+
+    private final CountDownLatch gateReleased = new CountDownLatch(1);
+
+    private MqttInboundBatchProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        doAnswer(invocation -> events.add("commit")).when(transactionManager).commit(any());
+        doAnswer(invocation -> events.add("rollback")).when(transactionManager).rollback(any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateReleased.countDown();
+        if (processor != null) {
+            processor.stop();
+        }
+    }
+
+    @Test
+    void acksAfterCommitInReceiveOrder() throws Exception {
+        start(10, 10);
+        submitGate();
+        processor.submit(message("B"), this::record);
+        processor.submit(message("C"), this::record);
+        gateReleased.countDown();
+
+        awaitAcks(3);
+        assertEquals(List.of(
+            "process:A", "commit", "ack:A",
+            "process:B", "process:C", "commit", "ack:B", "ack:C"), events);
+    }
+
+    @Test
+    void rolledBackBatchIsReplayedOneByOne() throws Exception {
+        start(10, 10);
+        submitGate();
+        AtomicInteger calls = new AtomicInteger();
+        processor.submit(message("B"), this::record);
+        processor.submit(message("C"), message -> {
+            record(message);
+            if (calls.incrementAndGet() == 1) {
+                throw new DataAccessResourceFailureException("connection lost");
+            }
+        });
+        processor.submit(message("D"), this::record);
+        gateReleased.countDown();
+
+        awaitAcks(4);
+        assertEquals(List.of(
+            "process:A", "commit", "ack:A",
+            "process:B", "process:C", "rollback",
+            "process:B", "commit", "ack:B",
+            "process:C", "commit", "ack:C",
+            "process:D", "commit", "ack:D"), events);
+    }
+
+    @Test
+    void integrityViolationIsAckedAndDropped() throws Exception {
+        start(10, 10);
+        submitGate();
+        processor.submit(message("B"), message -> {
+            record(message);
+            throw new DataIntegrityViolationException("PID too long");
+        });
+        processor.submit(message("C"), this::record);
+        gateReleased.countDown();
+
+        awaitAcks(3);
+        assertEquals(List.of(
+            "process:A", "commit", "ack:A",
+            "process:B", "rollback",
+            "process:B", "rollback", "ack:B",
+            "process:C", "commit", "ack:C"), events);
+    }
+
+    @Test
+    void nonTransientErrorIsNotRetriedForever() throws Exception {
+        start(10, 10);
+        processor.submit(message("A"), message -> {
+            record(message);
+            throw new BadSqlGrammarException("insert", "INSERT INTO missing", new SQLException("no table"));
+        });
+        processor.submit(message("B"), this::record);
+
+        awaitAcks(2);
+        assertEquals(List.of("ack:A", "ack:B"), acks());
+    }
+
+    @Test
+    void transientErrorIsRetriedUntilCommit() throws Exception {
+        start(10, 10);
+        AtomicInteger calls = new AtomicInteger();
+        processor.submit(message("A"), message -> {
+            record(message);
+            // 批次中失败一次，逐条重试时再失败一次，退避后提交成功
+            if (calls.incrementAndGet() <= 2) {
+                throw new QueryTimeoutException("timeout");
+            }
+        });
+
+        awaitAcks(1);
+        assertEquals(3, calls.get());
+        assertEquals(List.of("commit", "ack:A"), events.subList(events.size() - 2, events.size()));
+    }
+
+    @Test
+    void submitBlocksWhenWindowIsFull() throws Exception {
+        start(2, 1);
+        submitGate();
+        processor.submit(message("B"), this::record);
+
+        CompletableFuture<Void> third = CompletableFuture.runAsync(() -> {
+            try {
+                processor.submit(message("C"), this::record);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(300);
+        assertFalse(third.isDone());
+
+        gateReleased.countDown();
+        third.get(5, TimeUnit.SECONDS);
+        awaitAcks(3);
+        assertEquals(List.of("ack:A", "ack:B", "ack:C"), acks());
+    }
+
+    @Test
+    void rejectsEmptyWindow() {
+        assertThrows(IllegalArgumentException.class, () -> start(0, 10));
+    }
+
+    private void start(int maxInFlight, int batchSize) {
+        processor = new MqttInboundBatchProcessor();
+        ReflectionTestUtils.setField(processor, "enabled", true);
+        ReflectionTestUtils.setField(processor, "maxInFlight", maxInFlight);
+        ReflectionTestUtils.setField(processor, "batchSize", batchSize);
+        ReflectionTestUtils.setField(processor, "transactionManager", transactionManager);
+        processor.start();
+    }
+
+    /**
+     * 提交消息A并在处理中阻塞，使后续消息排队组成下一个批次
+     */
+    private void submitGate() throws InterruptedException {
+        processor.submit(message("A"), message -> {
+            record(message);
+            gateStarted.countDown();
+            try {
+                gateReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        gateStarted.await();
+    }
+
+    private void record(Message<?> message) {
+        events.add("process:" + message.getPayload());
+    }
+
+    private Message<String> message(String id) {
+        SimpleAcknowledgment ack = () -> events.add("ack:" + id);
+        return MessageBuilder.withPayload(id)
+            .setHeader(IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK, ack)
+            .build();
+    }
+
+    private List<String> acks() {
+        return events.stream().filter(event -> event.startsWith("ack:")).toList();
+    }
+
+    private void awaitAcks(int count) {
+        await().atMost(10, TimeUnit.SECONDS).until(() -> acks().size() >= count);
+    }
+}
@@ -0,0 +1,60 @@
+package com.itdonghuang.mqtt;
+
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MqttPayloadEncoderTest {
+
+    private final MqttPayloadEncoder encoder = new MqttPayloadEncoder();
+
+    @Test
+    void gzipRoundTrip() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"PID\":\"P").append(i).append("\",\"status\":\"电池温度异常\"}");
+        }
+        byte[] data = json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+
+        // 同一线程连续压缩，验证复用的缓冲区被正确重置
+        assertArrayEquals(data, gunzip(encoder.gzip(data)));
+        assertArrayEquals(data, gunzip(encoder.gzip(data)));
+    }
+
+    @Test
+    void gzipEmptyAndLargePayload() throws IOException {
+        assertArrayEquals(new byte[0], gunzip(encoder.gzip(new byte[0])));
+
+        // 超过保留上限的缓冲区被替换后仍可继续使用
+        byte[] large = new byte[1024 * 1024];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i * 31 + (i >> 7));
+        }
+        assertArrayEquals(large, gunzip(encoder.gzip(large)));
+        byte[] small = "[]".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(small, gunzip(encoder.gzip(small)));
+    }
+
+    @Test
+    void toColumns() {
+        Map<String, List<Object>> columns = encoder.toColumns(List.of(
+            Map.of("T", 25.0, "C", 80.0),
+            Map.of("T", 26.0, "C", 79.0)));
+
+        assertEquals(List.of(25.0, 26.0), columns.get("T"));
+        assertEquals(List.of(80.0, 79.0), columns.get("C"));
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.itdonghuang.service.impl;
+
+import com.itdonghuang.entity.BatteryData;
+import com.itdonghuang.entity.BatteryLiveState;
+import com.itdonghuang.entity.BatteryStatusRecord;
+import com.itdonghuang.mapper.BatteryDataMapper;
+import com.itdonghuang.mapper.BatteryStatusRecordMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BatteryStateServiceImplTest {
+
+    private final BatteryDataMapper batteryDataMapper = mock(BatteryDataMapper.class);
+
+    private final BatteryStatusRecordMapper statusRecordMapper = mock(BatteryStatusRecordMapper.class);
+
+    private BatteryStateServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new BatteryStateServiceImpl();
+        ReflectionTestUtils.setField(service, "batteryDataMapper", batteryDataMapper);
+        ReflectionTestUtils.setField(service, "statusRecordMapper", statusRecordMapper);
+    }
+
+    @Test
+    void duplicateDataRefreshesLastSeenWithoutBumpingVersion() {
+        service.updateData("V1", "P1", 25.0, 80.0);
+        long version = service.getVersion();
+        BatteryLiveState first = service.getState("P1");
+
+        service.updateData("V1", "P1", 25.0, 80.0);
+        BatteryLiveState second = service.getState("P1");
+
+        assertEquals(version, service.getVersion());
+        assertEquals(first.getVersion(), second.getVersion());
+        assertNotSame(first, second);
+        assertFalse(second.getLastSeen().isBefore(first.getLastSeen()));
+    }
+
+    @Test
+    void changedDataBumpsBothVersions() {
+        service.updateData("V1", "P1", 25.0, 80.0);
+        long version = service.getVersion();
+        long entryVersion = service.getState("P1").getVersion();
+
+        service.updateData("V1", "P1", 26.0, 80.0);
+
+        assertEquals(version + 1, service.getVersion());
+        assertNotEquals(entryVersion, service.getState("P1").getVersion());
+        assertEquals(26.0, service.getState("P1").getT());
+    }
+
+    @Test
+    void statusVersionRules() {
+        LocalDateTime time = LocalDateTime.of(2024, 1, 1, 12, 0);
+        service.updateData("V1", "P1", 25.0, 80.0);
+        service.updateStatus("P1", 1, time);
+        long version = service.getVersion();
+        long entryVersion = service.getState("P1").getVersion();
+
+        service.updateStatus("P1", 1, time);
+        assertEquals(version, service.getVersion());
+        assertEquals(entryVersion, service.getState("P1").getVersion());
+
+        service.updateStatus("P1", 2, time);
+        assertEquals(version + 1, service.getVersion());
+        assertEquals(2, service.getState("P1").getStatus());
+        // 状态更新保留已有的电池数据
+        assertEquals(25.0, service.getState("P1").getT());
+    }
+
+    @Test
+    void seedFillsMissingStateWithoutOverridingLiveData() {
+        service.updateData("V1", "P1", 30.0, 50.0);
+        when(batteryDataMapper.findLatest()).thenReturn(List.of(
+            batteryData("V1", "P1", 20.0, 90.0),
+            batteryData("V2", "P2", 40.0, 60.0)));
+        when(statusRecordMapper.findLatest()).thenReturn(List.of(
+            statusRecord("P2", 1, LocalDateTime.of(2024, 1, 1, 8, 0))));
+        long version = service.getVersion();
+
+        service.seed();
+
+        assertTrue(service.isSeeded());
+        assertEquals(version + 1, service.getVersion());
+        assertEquals(30.0, service.getState("P1").getT());
+        BatteryLiveState seeded = service.getState("P2");
+        assertEquals("V2", seeded.getVID());
+        assertEquals(1, seeded.getStatus());
+        assertNull(seeded.getLastSeen());
+    }
+
+    @Test
+    void seedFailureLeavesStateUnseeded() {
+        when(batteryDataMapper.findLatest()).thenThrow(new DataAccessResourceFailureException("down"));
+
+        service.seed();
+
+        assertFalse(service.isSeeded());
+        assertEquals(0, service.getVersion());
+    }
+
+    private static BatteryData batteryData(String vid, String pid, Double T, Double C) {
+        BatteryData data = new BatteryData();
+        data.setVID(vid);
+        data.setPID(pid);
+        data.setT(T);
+        data.setC(C);
+        return data;
+    }
+
+    private static BatteryStatusRecord statusRecord(String pid, Integer status, LocalDateTime time) {
+        BatteryStatusRecord record = new BatteryStatusRecord();
+        record.setPID(pid);
+        record.setStatus(status);
+        record.setTime(time);
+        return record;
+    }
+}